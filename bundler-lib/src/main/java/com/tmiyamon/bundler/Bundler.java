@@ -5,4 +5,10 @@ import java.lang.annotation.Target;
 
 @Target(ElementType.TYPE)
 public @interface Bundler {
+    /**
+     * Maximum number of encoded bundles kept for {@code createBundle(T model)}.
+     * Only available for immutable models, whose fields are all final and initialized in constructor.
+     * 0 disables caching.
+     */
+    int cacheSize() default 0;
 }
@@ -0,0 +1,86 @@
+package com.tmiyamon.bundler;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Bounded cache from model to its encoded value, used by generated classes of {@code @Bundler(cacheSize = n)}.
+ * Keys are held weakly, and the oldest entry is evicted when the cache exceeds its size.
+ */
+public final class BundlerCache<K, V> {
+    private final int maxSize;
+    private final Map<K, V> entries = new WeakHashMap<>();
+    private final ArrayDeque<WeakReference<K>> insertionOrder = new ArrayDeque<>();
+    private long hitCount;
+    private long missCount;
+
+    public BundlerCache(int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize must be positive");
+        }
+        this.maxSize = maxSize;
+    }
+
+    public synchronized V get(K key) {
+        V value = entries.get(key);
+        if (value != null) {
+            hitCount++;
+        } else {
+            missCount++;
+        }
+        return value;
+    }
+
+    public synchronized void put(K key, V value) {
+        if (key == null || value == null) {
+            throw new IllegalArgumentException("key and value must not be null");
+        }
+
+        if (entries.put(key, value) == null) {
+            insertionOrder.add(new WeakReference<>(key));
+        }
+
+        while (entries.size() > maxSize && !insertionOrder.isEmpty()) {
+            K eldest = insertionOrder.poll().get();
+            if (eldest != null) {
+                entries.remove(eldest);
+            }
+        }
+
+        // collected keys leave stale references behind
+        if (insertionOrder.size() > maxSize * 2) {
+            ArrayDeque<WeakReference<K>> alive = new ArrayDeque<>(maxSize);
+            for (WeakReference<K> reference : insertionOrder) {
+                K k = reference.get();
+                if (k != null && entries.containsKey(k)) {
+                    alive.add(reference);
+                }
+            }
+            insertionOrder.clear();
+            insertionOrder.addAll(alive);
+        }
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        insertionOrder.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    synchronized int trackedKeyCount() {
+        return insertionOrder.size();
+    }
+
+    public synchronized long hitCount() {
+        return hitCount;
+    }
+
+    public synchronized long missCount() {
+        return missCount;
+    }
+}
@@ -0,0 +1,106 @@
+package com.tmiyamon.bundler;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.Charset;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Deflate/inflate used by generated classes for {@code @Compressed} fields.
+ * Deflater, Inflater and buffers are kept per thread and reused across calls.
+ */
+public final class BundlerCompression {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final int CHUNK_SIZE = 8 * 1024;
+    private static final int MAX_RETAINED_OUTPUT_SIZE = 256 * 1024;
+    private static final int MAX_INFLATED_LENGTH = 16 * 1024 * 1024;
+
+    private static final ThreadLocal<Buffers> BUFFERS = new ThreadLocal<Buffers>() {
+        @Override
+        protected Buffers initialValue() {
+            return new Buffers();
+        }
+    };
+
+    private BundlerCompression() {
+    }
+
+    public static byte[] encodeUtf8(String value) {
+        return value.getBytes(UTF_8);
+    }
+
+    public static String inflateString(byte[] compressed, int inflatedLength) {
+        return new String(inflate(compressed, inflatedLength), UTF_8);
+    }
+
+    public static byte[] deflate(byte[] value) {
+        final Buffers buffers = BUFFERS.get();
+        final Deflater deflater = buffers.deflater;
+        final ByteArrayOutputStream output = buffers.output;
+        try {
+            deflater.setInput(value);
+            deflater.finish();
+            while (!deflater.finished()) {
+                int length = deflater.deflate(buffers.chunk);
+                output.write(buffers.chunk, 0, length);
+            }
+            return output.toByteArray();
+        } finally {
+            deflater.reset();
+            buffers.resetOutput();
+        }
+    }
+
+    /**
+     * Inflates a value which must be exactly {@code inflatedLength} bytes long.
+     * The length bounds the allocation, since the compressed value may come from another app.
+     */
+    public static byte[] inflate(byte[] compressed, int inflatedLength) {
+        if (compressed == null) {
+            throw new IllegalArgumentException("Compressed value is missing");
+        }
+        if (inflatedLength < 0 || inflatedLength > MAX_INFLATED_LENGTH) {
+            throw new IllegalArgumentException("Inflated length " + inflatedLength + " is out of range");
+        }
+
+        final Buffers buffers = BUFFERS.get();
+        final Inflater inflater = buffers.inflater;
+        final byte[] output = new byte[inflatedLength];
+        try {
+            inflater.setInput(compressed);
+            int offset = 0;
+            while (offset < inflatedLength) {
+                int length = inflater.inflate(output, offset, inflatedLength - offset);
+                if (length == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IllegalArgumentException("Compressed value is shorter than " + inflatedLength + " bytes");
+                }
+                offset += length;
+            }
+            if (!inflater.finished() && inflater.inflate(buffers.chunk, 0, 1) > 0) {
+                throw new IllegalArgumentException("Compressed value is longer than " + inflatedLength + " bytes");
+            }
+            return output;
+        } catch (DataFormatException e) {
+            throw new IllegalArgumentException("Compressed value is corrupted", e);
+        } finally {
+            inflater.reset();
+        }
+    }
+
+    private static final class Buffers {
+        final Deflater deflater = new Deflater();
+        final Inflater inflater = new Inflater();
+        final byte[] chunk = new byte[CHUNK_SIZE];
+        ByteArrayOutputStream output = new ByteArrayOutputStream(CHUNK_SIZE);
+
+        void resetOutput() {
+            // don't hold on to the buffer grown by an unusually large value
+            if (output.size() > MAX_RETAINED_OUTPUT_SIZE) {
+                output = new ByteArrayOutputStream(CHUNK_SIZE);
+            } else {
+                output.reset();
+            }
+        }
+    }
+}
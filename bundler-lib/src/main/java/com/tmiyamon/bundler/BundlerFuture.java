@@ -0,0 +1,101 @@
+package com.tmiyamon.bundler;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Result of a decode started ahead of time, returned by {@code prefetch} of generated classes.
+ * If {@link #get()} is called before the executor picks the decode up, it runs on the calling thread instead.
+ */
+public final class BundlerFuture<T> {
+    private static final int PENDING = 0;
+    private static final int RUNNING = 1;
+    private static final int DONE = 2;
+
+    private final Callable<T> decoder;
+    private int state = PENDING;
+    private T value;
+    private Throwable error;
+
+    private final Runnable task = new Runnable() {
+        @Override
+        public void run() {
+            if (claim()) {
+                decode();
+            }
+        }
+    };
+
+    private BundlerFuture(Callable<T> decoder) {
+        this.decoder = decoder;
+    }
+
+    public static <T> BundlerFuture<T> submit(Callable<T> decoder, Executor executor) {
+        BundlerFuture<T> future = new BundlerFuture<>(decoder);
+        try {
+            executor.execute(future.task);
+        } catch (RejectedExecutionException e) {
+            // decoded on the first get()
+        }
+        return future;
+    }
+
+    public T get() {
+        if (claim()) {
+            decode();
+        }
+
+        boolean interrupted = false;
+        synchronized (this) {
+            while (state != DONE) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+
+        if (error instanceof RuntimeException) {
+            throw (RuntimeException) error;
+        } else if (error instanceof Error) {
+            throw (Error) error;
+        } else if (error != null) {
+            throw new RuntimeException(error);
+        }
+        return value;
+    }
+
+    public synchronized boolean isDone() {
+        return state == DONE;
+    }
+
+    private synchronized boolean claim() {
+        if (state != PENDING) {
+            return false;
+        }
+        state = RUNNING;
+        return true;
+    }
+
+    private void decode() {
+        T result = null;
+        Throwable failure = null;
+        try {
+            result = decoder.call();
+        } catch (Throwable t) {
+            failure = t;
+        }
+
+        synchronized (this) {
+            value = result;
+            error = failure;
+            state = DONE;
+            notifyAll();
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.tmiyamon.bundler;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Target;
+
+/**
+ * Deflates a String or byte[] field when it is put to Bundle, if its length exceeds {@link #threshold()}.
+ */
+@Target(ElementType.FIELD)
+public @interface Compressed {
+    /**
+     * Length above which the value is compressed, in characters for String and in bytes for byte[].
+     */
+    int threshold() default 1024;
+}
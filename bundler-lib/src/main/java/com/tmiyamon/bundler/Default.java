@@ -0,0 +1,16 @@
+package com.tmiyamon.bundler;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Target;
+
+/**
+ * Skips putting a field to Bundle when it equals the default value, and parses the default value when it is absent.
+ * For non-primitive fields, null is also skipped and parsed as the default value.
+ */
+@Target(ElementType.FIELD)
+public @interface Default {
+    /**
+     * Java expression of the default value, e.g. {@code @Default("10")} or {@code @Default("\"guest\"")}.
+     */
+    String value();
+}
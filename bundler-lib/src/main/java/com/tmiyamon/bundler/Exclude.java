@@ -0,0 +1,12 @@
+package com.tmiyamon.bundler;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Target;
+
+/**
+ * Leaves a field out of the generated class, e.g. caches or state derived from other fields.
+ * Static fields are always left out.
+ */
+@Target(ElementType.FIELD)
+public @interface Exclude {
+}
@@ -0,0 +1,11 @@
+package com.tmiyamon.bundler;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Target;
+
+/**
+ * Skips putting a field to Bundle when it is null. Only available for non-primitive fields.
+ */
+@Target(ElementType.FIELD)
+public @interface Optional {
+}
@@ -0,0 +1,86 @@
+package com.tmiyamon.bundler;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+public class BundlerCacheTest {
+
+    @Test
+    public void countsHitsAndMisses() throws Exception {
+        BundlerCache<String, String> cache = new BundlerCache<>(2);
+
+        assertNull(cache.get("a"));
+        cache.put("a", "A");
+        assertEquals("A", cache.get("a"));
+        assertEquals("A", cache.get("a"));
+        assertNull(cache.get("b"));
+
+        assertEquals(2, cache.hitCount());
+        assertEquals(2, cache.missCount());
+    }
+
+    @Test
+    public void evictsOldestEntry() throws Exception {
+        BundlerCache<String, String> cache = new BundlerCache<>(2);
+
+        cache.put("a", "A");
+        cache.put("b", "B");
+        cache.put("c", "C");
+
+        assertEquals(2, cache.size());
+        assertNull(cache.get("a"));
+        assertEquals("B", cache.get("b"));
+        assertEquals("C", cache.get("c"));
+        assertEquals(2, cache.trackedKeyCount());
+    }
+
+    @Test
+    public void replacesValueOfExistingKey() throws Exception {
+        BundlerCache<String, String> cache = new BundlerCache<>(2);
+
+        cache.put("a", "A");
+        cache.put("a", "A2");
+        cache.put("a", "A3");
+
+        assertEquals(1, cache.size());
+        assertEquals(1, cache.trackedKeyCount());
+        assertEquals("A3", cache.get("a"));
+    }
+
+    @Test
+    public void compactsReferencesOfCollectedKeys() throws Exception {
+        BundlerCache<Object, String> cache = new BundlerCache<>(4);
+        for (int batch = 0; batch < 2; batch++) {
+            for (int i = 0; i < 4; i++) {
+                putUnreachableKey(cache);
+            }
+            assumeTrue("keys were not collected", awaitCollected(cache));
+        }
+        assertEquals(8, cache.trackedKeyCount());
+
+        Object live = new Object();
+        cache.put(live, "live");
+
+        assertEquals(1, cache.trackedKeyCount());
+        assertEquals("live", cache.get(live));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNonPositiveSize() throws Exception {
+        new BundlerCache<String, String>(0);
+    }
+
+    private static boolean awaitCollected(BundlerCache<?, ?> cache) throws InterruptedException {
+        for (int i = 0; i < 50 && cache.size() > 0; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        return cache.size() == 0;
+    }
+
+    private static void putUnreachableKey(BundlerCache<Object, String> cache) {
+        cache.put(new Object(), "value");
+    }
+}
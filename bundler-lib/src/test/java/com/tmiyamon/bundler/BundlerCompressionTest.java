@@ -0,0 +1,74 @@
+package com.tmiyamon.bundler;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class BundlerCompressionTest {
+
+    @Test
+    public void roundTripsString() throws Exception {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            builder.append("{\"name\":\"\u3070\u3093\u3069\u3089\",\"id\":").append(i).append("},");
+        }
+        String json = builder.toString();
+
+        byte[] bytes = BundlerCompression.encodeUtf8(json);
+        byte[] compressed = BundlerCompression.deflate(bytes);
+        assertTrue(compressed.length < json.length());
+        assertEquals(json, BundlerCompression.inflateString(compressed, bytes.length));
+    }
+
+    @Test
+    public void roundTripsBytesRepeatedly() throws Exception {
+        Random random = new Random(0);
+        for (int size : new int[] { 0, 1, 10 * 1024, 512 * 1024, 3 }) {
+            byte[] value = new byte[size];
+            random.nextBytes(value);
+
+            byte[] inflated = BundlerCompression.inflate(BundlerCompression.deflate(value), size);
+            assertTrue(Arrays.equals(value, inflated));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsCorruptedValue() throws Exception {
+        BundlerCompression.inflate(new byte[] { 1, 2, 3, 4 }, 4);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsTruncatedValue() throws Exception {
+        byte[] compressed = BundlerCompression.deflate(new byte[4096]);
+        BundlerCompression.inflate(Arrays.copyOf(compressed, compressed.length / 2), 4096);
+    }
+
+    @Test
+    public void rejectsValueLongerThanDeclared() throws Exception {
+        // a few KB that would inflate to 8 MB if the declared length were trusted
+        byte[] compressed = BundlerCompression.deflate(new byte[8 * 1024 * 1024]);
+        assertTrue(compressed.length < 16 * 1024);
+
+        try {
+            BundlerCompression.inflate(compressed, 1024);
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertEquals("Compressed value is longer than 1024 bytes", e.getMessage());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsValueShorterThanDeclared() throws Exception {
+        byte[] compressed = BundlerCompression.deflate(new byte[1024]);
+        BundlerCompression.inflate(compressed, 4096);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsDeclaredLengthOverLimit() throws Exception {
+        byte[] compressed = BundlerCompression.deflate(new byte[1024]);
+        BundlerCompression.inflate(compressed, Integer.MAX_VALUE);
+    }
+}
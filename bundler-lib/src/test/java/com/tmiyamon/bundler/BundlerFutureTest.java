@@ -0,0 +1,166 @@
+package com.tmiyamon.bundler;
+
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.Assert.*;
+
+public class BundlerFutureTest {
+
+    @Test
+    public void decodesOnExecutor() throws Exception {
+        QueueExecutor executor = new QueueExecutor();
+        CountingDecoder decoder = new CountingDecoder("bundler");
+
+        BundlerFuture<String> future = BundlerFuture.submit(decoder, executor);
+        assertFalse(future.isDone());
+        assertEquals(0, decoder.calls);
+
+        executor.runAll();
+        assertTrue(future.isDone());
+        assertEquals("bundler", future.get());
+        assertEquals(1, decoder.calls);
+    }
+
+    @Test
+    public void decodesOnCallerWhenExecutorHasNotStarted() throws Exception {
+        QueueExecutor executor = new QueueExecutor();
+        CountingDecoder decoder = new CountingDecoder("bundler");
+
+        BundlerFuture<String> future = BundlerFuture.submit(decoder, executor);
+        assertEquals("bundler", future.get());
+        assertEquals(1, decoder.calls);
+
+        executor.runAll();
+        assertEquals("bundler", future.get());
+        assertEquals(1, decoder.calls);
+    }
+
+    @Test
+    public void decodesOnCallerWhenExecutorRejects() throws Exception {
+        Executor rejecting = new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                throw new RejectedExecutionException();
+            }
+        };
+        CountingDecoder decoder = new CountingDecoder("bundler");
+
+        BundlerFuture<String> future = BundlerFuture.submit(decoder, rejecting);
+        assertEquals("bundler", future.get());
+        assertEquals(1, decoder.calls);
+    }
+
+    @Test
+    public void waitsForRunningDecode() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final QueueExecutor executor = new QueueExecutor();
+
+        final BundlerFuture<String> future = BundlerFuture.submit(new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+                started.countDown();
+                release.await();
+                return "bundler";
+            }
+        }, executor);
+
+        Thread worker = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                executor.runAll();
+            }
+        });
+        worker.start();
+        started.await();
+
+        assertFalse(future.isDone());
+        release.countDown();
+        assertEquals("bundler", future.get());
+        worker.join();
+    }
+
+    @Test
+    public void rethrowsDecodeFailure() throws Exception {
+        QueueExecutor executor = new QueueExecutor();
+        BundlerFuture<String> future = BundlerFuture.submit(new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+                throw new IllegalStateException("broken");
+            }
+        }, executor);
+        executor.runAll();
+
+        try {
+            future.get();
+            fail();
+        } catch (IllegalStateException e) {
+            assertEquals("broken", e.getMessage());
+        }
+    }
+
+    @Test
+    public void wrapsCheckedDecodeFailure() throws Exception {
+        QueueExecutor executor = new QueueExecutor();
+        final Exception cause = new Exception("broken");
+        BundlerFuture<String> future = BundlerFuture.submit(new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+                throw cause;
+            }
+        }, executor);
+        executor.runAll();
+
+        try {
+            future.get();
+            fail();
+        } catch (RuntimeException e) {
+            assertSame(cause, e.getCause());
+        }
+    }
+
+    /**
+     * Runs submitted tasks only when asked to.
+     */
+    private static class QueueExecutor implements Executor {
+        private final Queue<Runnable> tasks = new ArrayDeque<>();
+
+        @Override
+        public synchronized void execute(Runnable command) {
+            tasks.add(command);
+        }
+
+        public void runAll() {
+            Runnable task;
+            while ((task = poll()) != null) {
+                task.run();
+            }
+        }
+
+        private synchronized Runnable poll() {
+            return tasks.poll();
+        }
+    }
+
+    private static class CountingDecoder implements Callable<String> {
+        private final String value;
+        private int calls;
+
+        CountingDecoder(String value) {
+            this.value = value;
+        }
+
+        @Override
+        public String call() throws Exception {
+            calls++;
+            return value;
+        }
+    }
+}
@@ -11,6 +11,7 @@ import java.util.List;
 import javax.lang.model.element.Element;
 import javax.lang.model.element.ElementKind;
 import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
 import javax.lang.model.element.TypeElement;
 
 class BundlerElement {
@@ -18,17 +19,20 @@ class BundlerElement {
     public final BundlerConstructorElement constructor;
     public final List<BundlerFieldElement> fields;
     public final String packageName;
+    public final int cacheSize;
 
     public BundlerElement(
             TypeElement originalElement,
             BundlerConstructorElement constructor,
             List<BundlerFieldElement> fields,
-            String packageName
+            String packageName,
+            int cacheSize
     ) {
         this.originalElement = originalElement;
         this.constructor = constructor;
         this.fields = fields;
         this.packageName = packageName;
+        this.cacheSize = cacheSize;
     }
 
     public ClassName getBundlerClassName() {
@@ -42,6 +46,10 @@ class BundlerElement {
         return "Bundler" + getOriginalClassName().toString().replaceFirst(this.packageName, "").replaceAll("\\.", "");
     }
 
+    public boolean isCacheEnabled() {
+        return cacheSize > 0;
+    }
+
     public String joinedFieldNames() {
         List<String> fieldNames = new ArrayList<>();
         for (BundlerFieldElement field : fields) {
@@ -59,7 +67,7 @@ class BundlerElement {
         final List<BundlerConstructorElement> constructors = new ArrayList<>();
 
         for (Element enclosedElement : typeElement.getEnclosedElements()) {
-            if (enclosedElement.getKind() == ElementKind.FIELD) {
+            if (enclosedElement.getKind() == ElementKind.FIELD && !isExcluded(enclosedElement)) {
                 fields.add(BundlerFieldElement.parse(env, typeElement, MoreElements.asVariable(enclosedElement)));
             }
 
@@ -72,13 +80,23 @@ class BundlerElement {
 
         final BundlerConstructorElement constructor = constructors.get(0);
         final String packageName = env.getPackageName(typeElement);
+        final int cacheSize = typeElement.getAnnotation(Bundler.class).cacheSize();
 
-        return new BundlerElement(
+        final BundlerElement bundler = new BundlerElement(
                 typeElement,
                 constructor,
                 fields,
-                packageName
+                packageName,
+                cacheSize
         );
+
+        validateCacheSize(bundler);
+
+        return bundler;
+    }
+
+    private static boolean isExcluded(Element field) {
+        return field.getModifiers().contains(Modifier.STATIC) || field.getAnnotation(Exclude.class) != null;
     }
 
     public boolean hasGetterOf(BundlerFieldElement field) {
@@ -140,6 +158,22 @@ class BundlerElement {
         }
     }
 
+    private static void validateCacheSize(BundlerElement bundler) {
+        if (bundler.cacheSize < 0) {
+            throw new IllegalArgumentException("cacheSize of @Bundler must not be negative");
+        }
+        if (bundler.isCacheEnabled() && !bundler.constructor.isParametersMatchToFields(bundler)) {
+            throw new IllegalArgumentException("cacheSize of @Bundler is available only for models initialized in constructor");
+        }
+        if (bundler.isCacheEnabled()) {
+            for (BundlerFieldElement field : bundler.fields) {
+                if (!field.isFinal()) {
+                    throw new IllegalArgumentException(field.fieldName + " must be final to use cacheSize of @Bundler");
+                }
+            }
+        }
+    }
+
     enum GetterType {
         FIELD, GETTER
     }
@@ -4,8 +4,11 @@ import com.google.common.base.CaseFormat;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
 
 import javax.lang.model.element.Modifier;
 import javax.lang.model.element.TypeElement;
@@ -20,6 +23,11 @@ class BundlerFieldElement {
     public final VariableElement variableElement;
     public final String bundleKeyName;
     public final String bundleKeyValue;
+    public final int compressThreshold;
+    public final boolean optional;
+    public final String defaultValue;
+
+    private static final int NOT_COMPRESSED = -1;
 
     private static final Map<String, String> ARGUMENT_TYPES = new HashMap<String, String>(20);
     static {
@@ -45,24 +53,129 @@ class BundlerFieldElement {
         ARGUMENT_TYPES.put("android.os.Parcelable", "Parcelable");
     }
 
+    private static final Set<String> DEFAULT_ARGUMENT_OPERATIONS = new HashSet<String>(Arrays.asList(
+            "String", "Int", "Long", "Double", "Short", "Float", "Byte", "Boolean", "Char", "CharSequence"
+    ));
+
+    private static final Set<String> PRIMITIVE_OPERATIONS = new HashSet<String>(Arrays.asList(
+            "Int", "Long", "Double", "Short", "Float", "Byte", "Boolean", "Char"
+    ));
+
     private BundlerFieldElement(
             String fieldName,
             VariableElement variableElement,
             String bundleKeyName,
-            String bundleKeyValue
+            String bundleKeyValue,
+            int compressThreshold,
+            boolean optional,
+            String defaultValue
     ) {
         this.fieldName = fieldName;
         this.fieldType = variableElement.asType();
         this.variableElement = variableElement;
         this.bundleKeyName = bundleKeyName;
         this.bundleKeyValue = bundleKeyValue;
+        this.compressThreshold = compressThreshold;
+        this.optional = optional;
+        this.defaultValue = defaultValue;
     }
 
     public static BundlerFieldElement parse(Env env, TypeElement bundlerElement, VariableElement fieldElement) {
         final String fieldName = fieldElement.getSimpleName().toString();
         final String bundleKeyName = "ARG_" + fromLowerCamelToUpperUnderscore(fieldName);
         final String bundleKeyValue = bundlerElement.getQualifiedName().toString() + "." + fieldName;
-        return new BundlerFieldElement(fieldName, fieldElement, bundleKeyName, bundleKeyValue);
+
+        final Compressed compressed = fieldElement.getAnnotation(Compressed.class);
+        if (compressed != null && compressed.threshold() < 0) {
+            throw new IllegalArgumentException("threshold of @Compressed on " + fieldName + " must not be negative");
+        }
+        final int compressThreshold = compressed == null ? NOT_COMPRESSED : compressed.threshold();
+
+        final boolean optional = fieldElement.getAnnotation(Optional.class) != null;
+        final Default defaultAnnotation = fieldElement.getAnnotation(Default.class);
+        final String defaultValue = defaultAnnotation == null ? null : defaultAnnotation.value();
+
+        final BundlerFieldElement field = new BundlerFieldElement(
+                fieldName,
+                fieldElement,
+                bundleKeyName,
+                bundleKeyValue,
+                compressThreshold,
+                optional,
+                defaultValue
+        );
+        validateCompressed(env, field);
+        validateOptional(field);
+        validateDefault(field);
+        return field;
+    }
+
+    private static void validateCompressed(Env env, BundlerFieldElement field) {
+        if (!field.isCompressed()) {
+            return;
+        }
+        final String operation = field.getOperation(env);
+        if (!"String".equals(operation) && !"ByteArray".equals(operation)) {
+            throw new IllegalArgumentException(field.fieldName + " must be String or byte[] to be @Compressed");
+        }
+    }
+
+    private static void validateOptional(BundlerFieldElement field) {
+        if (field.optional && field.isPrimitive()) {
+            throw new IllegalArgumentException(field.fieldName + " must not be primitive to be @Optional, use @Default instead");
+        }
+    }
+
+    private static void validateDefault(BundlerFieldElement field) {
+        if (!field.hasDefaultValue()) {
+            return;
+        }
+        if (field.defaultValue.trim().isEmpty()) {
+            throw new IllegalArgumentException("value of @Default on " + field.fieldName + " must not be empty");
+        }
+        if (field.optional) {
+            throw new IllegalArgumentException(field.fieldName + " must not be both @Optional and @Default");
+        }
+        if (field.isCompressed()) {
+            throw new IllegalArgumentException(field.fieldName + " must not be both @Compressed and @Default");
+        }
+        if (field.isArray()) {
+            throw new IllegalArgumentException(field.fieldName + " must not be array to be @Default");
+        }
+    }
+
+    public boolean hasDefaultValue() {
+        return defaultValue != null;
+    }
+
+    /**
+     * Whether Bundle has {@code getX(String key, X defaultValue)} for this field, which also unboxes boxed defaults.
+     */
+    public boolean hasDefaultArgumentGetter(Env env) {
+        return !isArray() && DEFAULT_ARGUMENT_OPERATIONS.contains(getOperation(env));
+    }
+
+    /**
+     * Whether this is a boxed primitive such as Integer, whose Bundle getter returns 0 or false instead of null.
+     */
+    public boolean isBoxedPrimitive(Env env) {
+        return !isPrimitive() && !isArray() && PRIMITIVE_OPERATIONS.contains(getOperation(env));
+    }
+
+    public String getDefaultValueName() {
+        return "DEFAULT_" + fromLowerCamelToUpperUnderscore(fieldName);
+    }
+
+    public boolean isCompressed() {
+        return compressThreshold != NOT_COMPRESSED;
+    }
+
+    public String getCompressedLengthKeyName() {
+        return "COMPRESSED_" + bundleKeyName;
+    }
+
+    public String getCompressedLengthKeyValue() {
+        return bundleKeyValue + ".compressed";
     }
 
     public String getRawTypeName() {
@@ -99,6 +212,10 @@ class BundlerFieldElement {
         return this.variableElement.getModifiers().contains(Modifier.PUBLIC);
     }
 
+    public boolean isFinal() {
+        return this.variableElement.getModifiers().contains(Modifier.FINAL);
+    }
+
     public String getExpectedGetterName() {
         return "get" + fromLowerCamelToUpperCamel(this.fieldName);
     }
@@ -7,6 +7,7 @@ import com.squareup.javapoet.FieldSpec;
 import com.squareup.javapoet.JavaFile;
 import com.squareup.javapoet.MethodSpec;
 import com.squareup.javapoet.ParameterSpec;
+import com.squareup.javapoet.ParameterizedTypeName;
 import com.squareup.javapoet.TypeName;
 import com.squareup.javapoet.TypeSpec;
 
@@ -15,12 +16,16 @@ import org.apache.commons.lang3.StringUtils;
 import java.io.IOException;
 import java.lang.annotation.Annotation;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
 
 import javax.lang.model.element.Element;
 import javax.lang.model.element.Modifier;
@@ -45,7 +50,7 @@ public class BundlerProcessingStep implements BasicAnnotationProcessor.Processin
     @Override
     public Set<Element> process(SetMultimap<Class<? extends Annotation>, Element> elementsByAnnotation) {
         Set<Element> delayed = new HashSet<>();
-        for (Element bundler : elementsByAnnotation.values()) {
+        for (Element bundler : sortByName(elementsByAnnotation.values())) {
             try {
                 BundlerElement bundleElement = BundlerElement.parse(bundler, env);
                 emitBundleClass(bundleElement);
@@ -57,6 +62,22 @@ public class BundlerProcessingStep implements BasicAnnotationProcessor.Processin
         return delayed;
     }
 
+    /**
+     * Orders elements by name so that classes are emitted and errors are reported in the same order for the same sources.
+     * @param elements
+     * @return
+     */
+    private static List<Element> sortByName(Collection<Element> elements) {
+        List<Element> sorted = new ArrayList<>(elements);
+        Collections.sort(sorted, new Comparator<Element>() {
+            @Override
+            public int compare(Element lhs, Element rhs) {
+                return lhs.toString().compareTo(rhs.toString());
+            }
+        });
+        return sorted;
+    }
+
     private void emitBundleClass(BundlerElement bundler) throws IOException {
         final ClassName bundlerClassName = bundler.getBundlerClassName();
 
@@ -67,6 +88,10 @@ public class BundlerProcessingStep implements BasicAnnotationProcessor.Processin
             emitField(field, typeSpecBuilder);
         }
 
+        if (bundler.isCacheEnabled()) {
+            emitCache(bundler, typeSpecBuilder);
+        }
+
         typeSpecBuilder
                 .addMethod(buildCreateBundle(bundler))
                 .addMethod(buildCreateBundleWithFields(bundler))
@@ -77,7 +102,9 @@ public class BundlerProcessingStep implements BasicAnnotationProcessor.Processin
                 .addMethod(buildApplyBundle(bundler))
                 .addMethod(buildApplyBundleWithField(bundler))
                 .addMethod(buildParse(bundler))
-                .addMethod(buildParseIntent(bundler));
+                .addMethod(buildParseIntent(bundler))
+                .addMethod(buildPrefetch(bundler))
+                .addMethod(buildPrefetchIntent(bundler));
         ;
 
         JavaFile.builder(bundlerClassName.packageName(), typeSpecBuilder.build())
@@ -98,25 +125,154 @@ public class BundlerProcessingStep implements BasicAnnotationProcessor.Processin
                 .initializer("$S", keyValue)
                 .build();
 
-        MethodSpec putOperation = MethodSpec.methodBuilder(field.getPutValueToBundleMethodName())
+        MethodSpec.Builder putOperation = MethodSpec.methodBuilder(field.getPutValueToBundleMethodName())
                 .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
                 .addParameter(ParameterSpec.builder(TypeName.get(getBundleType()), "bundle").build())
                 .addParameter(ParameterSpec.builder(valueType, "value").build())
-                .returns(TypeName.VOID)
-                .addStatement("bundle.put$N($N, $N)", operation, keyName, "value")
-                .build();
+                .returns(TypeName.VOID);
 
-        MethodSpec getOperation = MethodSpec.methodBuilder(field.getGetValueFromBundleMethodName())
+        MethodSpec.Builder getOperation = MethodSpec.methodBuilder(field.getGetValueFromBundleMethodName())
                 .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
                 .addParameter(ParameterSpec.builder(TypeName.get(getBundleType()), "bundle").build())
-                .returns(valueType)
-                .addStatement("return ($L) bundle.get$N($N)", valueType.toString(), operation, keyName)
+                .returns(valueType);
+
+        typeSpecBuilder.addField(bundleKey);
+
+        if (field.optional) {
+            putOperation.beginControlFlow("if (value == null)")
+                    .addStatement("bundle.remove($N)", keyName);
+            if (field.isCompressed()) {
+                putOperation.addStatement("bundle.remove($N)", field.getCompressedLengthKeyName());
+            }
+            putOperation.addStatement("return")
+                    .endControlFlow();
+        }
+
+        if (field.hasDefaultValue()) {
+            final String defaultName = field.getDefaultValueName();
+
+            FieldSpec defaultValue = FieldSpec.builder(valueType, defaultName)
+                    .addModifiers(Modifier.PUBLIC, Modifier.STATIC, Modifier.FINAL)
+                    .initializer("$L", field.defaultValue)
+                    .build();
+            typeSpecBuilder.addField(defaultValue);
+
+            if (field.isPrimitive()) {
+                putOperation.beginControlFlow("if (value == $N)", defaultName);
+            } else {
+                putOperation.beginControlFlow("if (value == null || value.equals($N))", defaultName);
+            }
+            if (field.hasDefaultArgumentGetter(env)) {
+                getOperation.addStatement("return bundle.get$N($N, $N)", operation, keyName, defaultName);
+            } else {
+                getOperation
+                        .addStatement("$T value = ($L) bundle.get$N($N)", valueType, valueType.toString(), operation, keyName)
+                        .addStatement("return value != null ? value : $N", defaultName);
+            }
+            putOperation
+                    .addStatement("bundle.remove($N)", keyName)
+                    .addStatement("return")
+                    .endControlFlow()
+                    .addStatement("bundle.put$N($N, $N)", operation, keyName, "value");
+
+            typeSpecBuilder
+                    .addMethod(getOperation.build())
+                    .addMethod(putOperation.build());
+            return;
+        }
+
+        if (field.isCompressed()) {
+            final String lengthKeyName = field.getCompressedLengthKeyName();
+
+            // holds the inflated length in bytes, which bounds inflation of values from other apps
+            FieldSpec lengthKey = FieldSpec.builder(TypeName.get(getStringType()), lengthKeyName)
+                    .addModifiers(Modifier.PUBLIC, Modifier.STATIC, Modifier.FINAL)
+                    .initializer("$S", field.getCompressedLengthKeyValue())
+                    .build();
+            typeSpecBuilder.addField(lengthKey);
+
+            final String inflateMethodName = field.isArray() ? "inflate" : "inflateString";
+            getOperation
+                    .addStatement("int inflatedLength = bundle.getInt($N)", lengthKeyName)
+                    .beginControlFlow("if (inflatedLength > 0)")
+                    .addStatement("return $T.$N(bundle.getByteArray($N), inflatedLength)", BundlerCompression.class, inflateMethodName, keyName)
+                    .endControlFlow();
+
+            final String lengthStatement = field.isArray() ? "value.length" : "value.length()";
+            if (field.optional) {
+                // null has already returned above
+                putOperation.beginControlFlow("if ($L > $L)", lengthStatement, field.compressThreshold);
+            } else {
+                putOperation.beginControlFlow("if (value != null && $L > $L)", lengthStatement, field.compressThreshold);
+            }
+            if (field.isArray()) {
+                putOperation.addStatement("byte[] bytes = value");
+            } else {
+                putOperation.addStatement("byte[] bytes = $T.encodeUtf8(value)", BundlerCompression.class);
+            }
+            // incompressible values, e.g. images, would only grow.
+            // Parcel writes String as UTF-16, so it is compared with 2 bytes per char rather than its UTF-8 length.
+            final String parcelSizeStatement = field.isArray() ? "value.length" : "2 * value.length()";
+            putOperation
+                    .addStatement("byte[] compressed = $T.deflate(bytes)", BundlerCompression.class)
+                    .beginControlFlow("if (compressed.length < $L)", parcelSizeStatement)
+                    .addStatement("bundle.putByteArray($N, compressed)", keyName)
+                    .addStatement("bundle.putInt($N, bytes.length)", lengthKeyName)
+                    .addStatement("return")
+                    .endControlFlow()
+                    .endControlFlow()
+                    .addStatement("bundle.remove($N)", lengthKeyName);
+        }
+
+        if (field.optional && field.isBoxedPrimitive(env)) {
+            // null is left out by putX, so absence has to be told apart from 0 or false
+            getOperation.addStatement("return bundle.containsKey($N) ? ($L) bundle.get$N($N) : null",
+                    keyName, valueType.toString(), operation, keyName);
+        } else {
+            getOperation.addStatement("return ($L) bundle.get$N($N)", valueType.toString(), operation, keyName);
+        }
+        putOperation.addStatement("bundle.put$N($N, $N)", operation, keyName, "value");
+
+        typeSpecBuilder
+                .addMethod(getOperation.build())
+                .addMethod(putOperation.build());
+    }
+
+    /**
+     * private static final BundlerCache<T, Bundle> BUNDLE_CACHE
+     * public static long cacheHitCount()
+     * public static long cacheMissCount()
+     * @param bundler
+     * @param typeSpecBuilder
+     */
+    private void emitCache(BundlerElement bundler, TypeSpec.Builder typeSpecBuilder) {
+        final TypeName cacheType = ParameterizedTypeName.get(
+                ClassName.get(BundlerCache.class),
+                TypeName.get(bundler.originalElement.asType()),
+                TypeName.get(getBundleType())
+        );
+
+        FieldSpec cache = FieldSpec.builder(cacheType, "BUNDLE_CACHE")
+                .addModifiers(Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+                .initializer("new $T<>($L)", BundlerCache.class, bundler.cacheSize)
+                .build();
+
+        MethodSpec hitCount = MethodSpec.methodBuilder("cacheHitCount")
+                .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                .returns(TypeName.LONG)
+                .addStatement("return BUNDLE_CACHE.hitCount()")
+                .build();
+
+        MethodSpec missCount = MethodSpec.methodBuilder("cacheMissCount")
+                .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                .returns(TypeName.LONG)
+                .addStatement("return BUNDLE_CACHE.missCount()")
                 .build();
 
         typeSpecBuilder
-                .addField(bundleKey)
-                .addMethod(getOperation)
-                .addMethod(putOperation);
+                .addField(cache)
+                .addMethod(hitCount)
+                .addMethod(missCount);
     }
 
     /**
@@ -125,11 +281,23 @@ public class BundlerProcessingStep implements BasicAnnotationProcessor.Processin
      * @return
      */
     private MethodSpec buildCreateBundle(BundlerElement bundler) {
-        return MethodSpec.methodBuilder("createBundle")
+        MethodSpec.Builder builder = MethodSpec.methodBuilder("createBundle")
                 .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
                 .addParameter(ParameterSpec.builder(TypeName.get(bundler.originalElement.asType()), "model").build())
-                .returns(TypeName.get(getBundleType()))
-                .addStatement("return apply(new Bundle(), model)")
+                .returns(TypeName.get(getBundleType()));
+
+        if (!bundler.isCacheEnabled()) {
+            return builder.addStatement("return apply(new Bundle(), model)").build();
+        }
+
+        // callers get a shallow copy; mutable values such as arrays are shared with the cached bundle
+        return builder
+                .addStatement("Bundle cached = BUNDLE_CACHE.get(model)")
+                .beginControlFlow("if (cached == null)")
+                .addStatement("cached = apply(new Bundle(), model)")
+                .addStatement("BUNDLE_CACHE.put(model, cached)")
+                .endControlFlow()
+                .addStatement("return new Bundle(cached)")
                 .build();
     }
 
@@ -281,6 +449,7 @@ public class BundlerProcessingStep implements BasicAnnotationProcessor.Processin
 
         boolean useConstructor = bundler.constructor.isParametersMatchToFields(bundler);
         if (useConstructor) {
+            // lookup only, never iterated
             Map<String, BundlerFieldElement> fieldIndex = new HashMap<>();
             for (BundlerFieldElement field : bundler.fields) {
                 fieldIndex.put(field.fieldName, field);
@@ -330,6 +499,48 @@ public class BundlerProcessingStep implements BasicAnnotationProcessor.Processin
                 .build();
     }
 
+    /**
+     * public static BundlerFuture<T> prefetch(Bundle bundle, Executor executor)
+     * @param bundler
+     * @return
+     */
+    private MethodSpec buildPrefetch(BundlerElement bundler) {
+        final ClassName modelClassName = bundler.getOriginalClassName();
+
+        TypeSpec decoder = TypeSpec.anonymousClassBuilder("")
+                .addSuperinterface(ParameterizedTypeName.get(ClassName.get(Callable.class), modelClassName))
+                .addMethod(MethodSpec.methodBuilder("call")
+                        .addAnnotation(Override.class)
+                        .addModifiers(Modifier.PUBLIC)
+                        .returns(modelClassName)
+                        .addStatement("return parse(bundle)")
+                        .build())
+                .build();
+
+        return MethodSpec.methodBuilder("prefetch")
+                .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                .addParameter(ParameterSpec.builder(TypeName.get(getBundleType()), "bundle", Modifier.FINAL).build())
+                .addParameter(ParameterSpec.builder(Executor.class, "executor").build())
+                .returns(ParameterizedTypeName.get(ClassName.get(BundlerFuture.class), modelClassName))
+                .addStatement("return $T.submit($L, executor)", BundlerFuture.class, decoder)
+                .build();
+    }
+
+    /**
+     * public static BundlerFuture<T> prefetch(Intent intent, Executor executor)
+     * @param bundler
+     * @return
+     */
+    private MethodSpec buildPrefetchIntent(BundlerElement bundler) {
+        return MethodSpec.methodBuilder("prefetch")
+                .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                .addParameter(ParameterSpec.builder(TypeName.get(getIntentType()), "intent").build())
+                .addParameter(ParameterSpec.builder(Executor.class, "executor").build())
+                .returns(ParameterizedTypeName.get(ClassName.get(BundlerFuture.class), bundler.getOriginalClassName()))
+                .addStatement("return prefetch(intent.getExtras(), executor)")
+                .build();
+    }
+
     private TypeMirror getTypeFromString(String fullClassName)  {
         return env.getElements().getTypeElement(fullClassName).asType();
     }
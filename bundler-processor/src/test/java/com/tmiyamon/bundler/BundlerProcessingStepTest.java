@@ -0,0 +1,594 @@
+package com.tmiyamon.bundler;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.URI;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.Executor;
+
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+import static org.junit.Assert.*;
+
+public class BundlerProcessingStepTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private static final JavaFileObject BUNDLE = source("android.os.Bundle",
+            "package android.os;",
+            "import java.util.HashMap;",
+            "import java.util.Map;",
+            "public class Bundle {",
+            "    private final Map<String, Object> values = new HashMap<>();",
+            "    public Bundle() {}",
+            "    public Bundle(Bundle bundle) { values.putAll(bundle.values); }",
+            "    public void putAll(Bundle bundle) { values.putAll(bundle.values); }",
+            "    public int size() { return values.size(); }",
+            "    public boolean containsKey(String key) { return values.containsKey(key); }",
+            "    public Object get(String key) { return values.get(key); }",
+            "    public void remove(String key) { values.remove(key); }",
+            "    public void putString(String key, String value) { values.put(key, value); }",
+            "    public String getString(String key) { return (String) values.get(key); }",
+            "    public String getString(String key, String defaultValue) {",
+            "        String value = (String) values.get(key);",
+            "        return value != null ? value : defaultValue;",
+            "    }",
+            "    public void putInt(String key, int value) { values.put(key, value); }",
+            "    public int getInt(String key) { return getInt(key, 0); }",
+            "    public int getInt(String key, int defaultValue) {",
+            "        Integer value = (Integer) values.get(key);",
+            "        return value != null ? value : defaultValue;",
+            "    }",
+            "    public void putBoolean(String key, boolean value) { values.put(key, value); }",
+            "    public boolean getBoolean(String key) {",
+            "        Boolean value = (Boolean) values.get(key);",
+            "        return value != null && value;",
+            "    }",
+            "    public void putByteArray(String key, byte[] value) { values.put(key, value); }",
+            "    public byte[] getByteArray(String key) { return (byte[]) values.get(key); }",
+            "    public void putIntArray(String key, int[] value) { values.put(key, value); }",
+            "    public void putStringArrayList(String key, java.util.ArrayList<String> value) { values.put(key, value); }",
+            "    @SuppressWarnings(\"unchecked\")",
+            "    public java.util.ArrayList<String> getStringArrayList(String key) {",
+            "        return (java.util.ArrayList<String>) values.get(key);",
+            "    }",
+            "    public int[] getIntArray(String key) { return (int[]) values.get(key); }",
+            "}");
+    private static final JavaFileObject PARCELABLE = source("android.os.Parcelable",
+            "package android.os;",
+            "public interface Parcelable {}");
+    private static final JavaFileObject INTENT = source("android.content.Intent",
+            "package android.content;",
+            "import android.os.Bundle;",
+            "public class Intent {",
+            "    private Bundle extras;",
+            "    public Intent putExtras(Bundle bundle) {",
+            "        if (extras == null) extras = new Bundle();",
+            "        extras.putAll(bundle);",
+            "        return this;",
+            "    }",
+            "    public Bundle getExtras() { return extras != null ? new Bundle(extras) : null; }",
+            "}");
+    private static final JavaFileObject SPARSE_ARRAY = source("android.util.SparseArray",
+            "package android.util;",
+            "public class SparseArray<E> {}");
+
+    private static final JavaFileObject USER = source("sample.User",
+            "package sample;",
+            "import com.tmiyamon.bundler.*;",
+            "@Bundler(cacheSize = 4)",
+            "public class User {",
+            "    public static final String TAG = \"user\";",
+            "    public final String name;",
+            "    public final int id;",
+            "    public User(String name, int id) {",
+            "        this.name = name;",
+            "        this.id = id;",
+            "    }",
+            "}");
+    private static final JavaFileObject SETTINGS = source("sample.Settings",
+            "package sample;",
+            "import com.tmiyamon.bundler.*;",
+            "@Bundler",
+            "public class Settings {",
+            "    public static final String KIND = \"settings\";",
+            "    @Default(\"10\") public int pageSize;",
+            "    @Default(\"\\\"light\\\"\") public String mode;",
+            "    @Default(\"new java.util.ArrayList<String>()\") public java.util.ArrayList<String> tags;",
+            "    @Optional public String theme;",
+            "    @Optional public Integer count;",
+            "    @Compressed public String json;",
+            "    @Exclude public Object cache;",
+            "}");
+    private static final JavaFileObject ATTACHMENT = source("sample.Attachment",
+            "package sample;",
+            "import com.tmiyamon.bundler.*;",
+            "@Bundler",
+            "public class Attachment {",
+            "    @Compressed public byte[] data;",
+            "    @Optional @Compressed(threshold = 4) public String note;",
+            "}");
+    private static final JavaFileObject SCREEN = source("sample.Screen",
+            "package sample;",
+            "import com.tmiyamon.bundler.*;",
+            "public class Screen {",
+            "    @Bundler public static class Params {",
+            "        public String title;",
+            "    }",
+            "    @Bundler public static class Result {",
+            "        public long elapsed;",
+            "    }",
+            "}");
+    private static final JavaFileObject SCREEN_CHANGED = source("sample.Screen",
+            "package sample;",
+            "import com.tmiyamon.bundler.*;",
+            "public class Screen {",
+            "    @Bundler public static class Params {",
+            "        public String title;",
+            "        public String subtitle;",
+            "    }",
+            "    @Bundler public static class Result {",
+            "        public long elapsed;",
+            "    }",
+            "}");
+
+    @Test
+    public void generatesSameOutputForShuffledInputs() throws Exception {
+        List<JavaFileObject> sources = Arrays.asList(USER, SETTINGS, SCREEN);
+        List<JavaFileObject> reversed = new ArrayList<>(sources);
+        Collections.reverse(reversed);
+        List<JavaFileObject> shuffled = new ArrayList<>(sources);
+        Collections.shuffle(shuffled, new Random(42));
+
+        Map<String, byte[]> first = generate(sources);
+
+        assertEquals(Arrays.asList(
+                "sample/BundlerScreenParams.java",
+                "sample/BundlerScreenResult.java",
+                "sample/BundlerSettings.java",
+                "sample/BundlerUser.java"
+        ), new ArrayList<>(first.keySet()));
+        assertSameOutput(first, generate(reversed));
+        assertSameOutput(first, generate(shuffled));
+    }
+
+    @Test
+    public void keepsOutputOfUnchangedModel() throws Exception {
+        Map<String, byte[]> before = generate(Arrays.asList(USER, SETTINGS, SCREEN));
+        Map<String, byte[]> after = generate(Arrays.asList(SCREEN_CHANGED, SETTINGS, USER));
+
+        assertArrayEquals(before.get("sample/BundlerUser.java"), after.get("sample/BundlerUser.java"));
+        assertArrayEquals(before.get("sample/BundlerSettings.java"), after.get("sample/BundlerSettings.java"));
+        assertArrayEquals(before.get("sample/BundlerScreenResult.java"), after.get("sample/BundlerScreenResult.java"));
+        assertFalse(Arrays.equals(before.get("sample/BundlerScreenParams.java"), after.get("sample/BundlerScreenParams.java")));
+    }
+
+    @Test
+    public void prefetchDecodesIntentOnExecutor() throws Exception {
+        Class<?> bundlerUser = load(Arrays.asList(USER)).loadClass("sample.BundlerUser");
+        Object intent = invoke(bundlerUser, "createIntent", "bundler", 1);
+        QueueExecutor executor = new QueueExecutor();
+
+        BundlerFuture<?> future = (BundlerFuture<?>) invoke(bundlerUser, "prefetch", intent, executor);
+        assertFalse(future.isDone());
+
+        assertEquals(1, executor.runAll());
+        assertTrue(future.isDone());
+
+        Object user = future.get();
+        assertEquals("bundler", fieldOf(user, "name"));
+        assertEquals(1, fieldOf(user, "id"));
+    }
+
+    @Test
+    public void prefetchDecodesOnCallerBeforeExecutorStarts() throws Exception {
+        Class<?> bundlerUser = load(Arrays.asList(USER)).loadClass("sample.BundlerUser");
+        Object intent = invoke(bundlerUser, "createIntent", "bundler", 1);
+        QueueExecutor executor = new QueueExecutor();
+
+        BundlerFuture<?> future = (BundlerFuture<?>) invoke(bundlerUser, "prefetch", intent, executor);
+
+        Object user = future.get();
+        assertTrue(future.isDone());
+        assertEquals("bundler", fieldOf(user, "name"));
+
+        // the queued decode finds the work already done
+        assertEquals(1, executor.runAll());
+        assertSame(user, future.get());
+    }
+
+    @Test
+    public void createBundleReusesCachedBundle() throws Exception {
+        ClassLoader loader = load(Arrays.asList(USER));
+        Class<?> bundlerUser = loader.loadClass("sample.BundlerUser");
+        Object user = loader.loadClass("sample.User").getConstructor(String.class, int.class).newInstance("bundler", 1);
+
+        Object first = invoke(bundlerUser, "createBundle", user);
+        call(first, "putString", "extra", "value");
+        Object second = invoke(bundlerUser, "createBundle", user);
+
+        assertNotSame(first, second);
+        assertEquals(false, call(second, "containsKey", "extra"));
+        assertEquals("bundler", fieldOf(invoke(bundlerUser, "parse", second), "name"));
+        assertEquals(1L, invoke(bundlerUser, "cacheHitCount"));
+        assertEquals(1L, invoke(bundlerUser, "cacheMissCount"));
+    }
+
+    @Test
+    public void rejectsCacheSizeForMutableModel() throws Exception {
+        String errors = errorsOf(Arrays.asList(source("sample.Mutable",
+                "package sample;",
+                "import com.tmiyamon.bundler.*;",
+                "@Bundler(cacheSize = 2)",
+                "public class Mutable {",
+                "    public String name;",
+                "    public Mutable(String name) {",
+                "        this.name = name;",
+                "    }",
+                "}")));
+
+        assertTrue(errors, errors.contains("name must be final to use cacheSize of @Bundler"));
+    }
+
+    @Test
+    public void storesCompressibleValueDeflated() throws Exception {
+        ClassLoader loader = load(Arrays.asList(ATTACHMENT));
+        Class<?> bundlerAttachment = loader.loadClass("sample.BundlerAttachment");
+        Object attachment = loader.loadClass("sample.Attachment").getConstructor().newInstance();
+        byte[] data = new byte[4096];
+        attachment.getClass().getField("data").set(attachment, data);
+
+        Object bundle = invoke(bundlerAttachment, "createBundle", attachment);
+
+        assertEquals(4096, call(bundle, "getInt", "sample.Attachment.data.compressed"));
+        assertTrue(((byte[]) call(bundle, "getByteArray", "sample.Attachment.data")).length < data.length);
+        assertArrayEquals(data, (byte[]) fieldOf(invoke(bundlerAttachment, "parse", bundle), "data"));
+    }
+
+    @Test
+    public void storesIncompressibleValueAsIs() throws Exception {
+        ClassLoader loader = load(Arrays.asList(ATTACHMENT));
+        Class<?> bundlerAttachment = loader.loadClass("sample.BundlerAttachment");
+        Object attachment = loader.loadClass("sample.Attachment").getConstructor().newInstance();
+        byte[] data = new byte[4096];
+        new Random(0).nextBytes(data);
+        attachment.getClass().getField("data").set(attachment, data);
+
+        Object bundle = invoke(bundlerAttachment, "createBundle", attachment);
+
+        assertEquals(false, call(bundle, "containsKey", "sample.Attachment.data.compressed"));
+        assertSame(data, call(bundle, "getByteArray", "sample.Attachment.data"));
+        assertArrayEquals(data, (byte[]) fieldOf(invoke(bundlerAttachment, "parse", bundle), "data"));
+    }
+
+    @Test
+    public void comparesStringWithItsParcelSize() throws Exception {
+        ClassLoader loader = load(Arrays.asList(ATTACHMENT));
+        Class<?> bundlerAttachment = loader.loadClass("sample.BundlerAttachment");
+        Random random = new Random(0);
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            builder.append((char) (0x4E00 + random.nextInt(256)));
+        }
+        String note = builder.toString();
+
+        // deflated UTF-8 exceeds the char count but not the 2 bytes per char it takes in a parcel
+        int compressedLength = BundlerCompression.deflate(BundlerCompression.encodeUtf8(note)).length;
+        assertTrue(compressedLength > note.length());
+        assertTrue(compressedLength < 2 * note.length());
+
+        Object bundle = loader.loadClass("android.os.Bundle").getConstructor().newInstance();
+        invoke(bundlerAttachment, "putNote", bundle, note);
+
+        assertEquals(compressedLength, ((byte[]) call(bundle, "getByteArray", "sample.Attachment.note")).length);
+        assertEquals(note, invoke(bundlerAttachment, "getNote", bundle));
+    }
+
+    @Test
+    public void rejectsCompressedValueLongerThanDeclared() throws Exception {
+        ClassLoader loader = load(Arrays.asList(ATTACHMENT));
+        Class<?> bundlerAttachment = loader.loadClass("sample.BundlerAttachment");
+        Object bundle = loader.loadClass("android.os.Bundle").getConstructor().newInstance();
+        call(bundle, "putByteArray", "sample.Attachment.data", BundlerCompression.deflate(new byte[8 * 1024 * 1024]));
+        call(bundle, "putInt", "sample.Attachment.data.compressed", 16);
+
+        try {
+            invoke(bundlerAttachment, "getData", bundle);
+            fail();
+        } catch (InvocationTargetException e) {
+            assertTrue(e.getCause() instanceof IllegalArgumentException);
+        }
+    }
+
+    @Test
+    public void checksNullOnceForOptionalCompressedField() throws Exception {
+        String generated = new String(generate(Arrays.asList(ATTACHMENT)).get("sample/BundlerAttachment.java"), "UTF-8");
+
+        assertTrue(generated, generated.contains("if (value.length() > 4) {"));
+        assertTrue(generated, generated.contains("if (value != null && value.length > 1024) {"));
+    }
+
+    @Test
+    public void leavesOutStaticAndExcludedFields() throws Exception {
+        String generated = new String(generate(Arrays.asList(SETTINGS)).get("sample/BundlerSettings.java"), "UTF-8");
+
+        assertFalse(generated, generated.contains("\"sample.Settings.KIND\""));
+        assertFalse(generated, generated.contains("getKIND("));
+        assertFalse(generated, generated.contains("putKIND("));
+        assertFalse(generated, generated.contains("\"sample.Settings.cache\""));
+        assertFalse(generated, generated.contains("getCache("));
+        assertFalse(generated, generated.contains("putCache("));
+    }
+
+    @Test
+    public void readsDefaultThroughTypedGetter() throws Exception {
+        String generated = new String(generate(Arrays.asList(SETTINGS)).get("sample/BundlerSettings.java"), "UTF-8");
+
+        assertTrue(generated, generated.contains("return bundle.getInt(ARG_PAGE_SIZE, DEFAULT_PAGE_SIZE);"));
+        assertTrue(generated, generated.contains("return bundle.getString(ARG_MODE, DEFAULT_MODE);"));
+        assertTrue(generated, generated.contains("ArrayList<String> value = (java.util.ArrayList<java.lang.String>) bundle.getStringArrayList(ARG_TAGS);"));
+        assertFalse(generated, generated.contains("bundle.get("));
+    }
+
+    @Test
+    public void skipsPuttingNullAndDefaultValues() throws Exception {
+        ClassLoader loader = load(Arrays.asList(SETTINGS));
+        Class<?> bundlerSettings = loader.loadClass("sample.BundlerSettings");
+        Object settings = loader.loadClass("sample.Settings").getConstructor().newInstance();
+        settings.getClass().getField("pageSize").set(settings, 10);
+        settings.getClass().getField("mode").set(settings, "light");
+
+        Object bundle = invoke(bundlerSettings, "createBundle", settings);
+
+        assertEquals(false, call(bundle, "containsKey", "sample.Settings.pageSize"));
+        assertEquals(false, call(bundle, "containsKey", "sample.Settings.mode"));
+        assertEquals(false, call(bundle, "containsKey", "sample.Settings.theme"));
+        assertEquals(false, call(bundle, "containsKey", "sample.Settings.count"));
+
+        Object parsed = invoke(bundlerSettings, "parse", bundle);
+        assertEquals(10, fieldOf(parsed, "pageSize"));
+        assertEquals("light", fieldOf(parsed, "mode"));
+        assertNull(fieldOf(parsed, "theme"));
+        assertNull(fieldOf(parsed, "count"));
+
+        settings.getClass().getField("pageSize").set(settings, 20);
+        settings.getClass().getField("theme").set(settings, "dark");
+        settings.getClass().getField("count").set(settings, 0);
+        bundle = invoke(bundlerSettings, "createBundle", settings);
+
+        assertEquals(20, call(bundle, "getInt", "sample.Settings.pageSize"));
+        assertEquals("dark", call(bundle, "getString", "sample.Settings.theme"));
+
+        parsed = invoke(bundlerSettings, "parse", bundle);
+        assertEquals(0, fieldOf(parsed, "count"));
+    }
+
+    @Test
+    public void rejectsOptionalPrimitive() throws Exception {
+        String errors = errorsOf(Arrays.asList(source("sample.Invalid",
+                "package sample;",
+                "import com.tmiyamon.bundler.*;",
+                "@Bundler",
+                "public class Invalid {",
+                "    @Optional public int count;",
+                "}")));
+
+        assertTrue(errors, errors.contains("count must not be primitive to be @Optional"));
+    }
+
+    @Test
+    public void rejectsOptionalWithDefault() throws Exception {
+        String errors = errorsOf(Arrays.asList(source("sample.Invalid",
+                "package sample;",
+                "import com.tmiyamon.bundler.*;",
+                "@Bundler",
+                "public class Invalid {",
+                "    @Optional @Default(\"\\\"guest\\\"\") public String role;",
+                "}")));
+
+        assertTrue(errors, errors.contains("role must not be both @Optional and @Default"));
+    }
+
+    @Test
+    public void rejectsDefaultArray() throws Exception {
+        String errors = errorsOf(Arrays.asList(source("sample.Invalid",
+                "package sample;",
+                "import com.tmiyamon.bundler.*;",
+                "@Bundler",
+                "public class Invalid {",
+                "    @Default(\"new int[0]\") public int[] ids;",
+                "}")));
+
+        assertTrue(errors, errors.contains("ids must not be array to be @Default"));
+    }
+
+    private void assertSameOutput(Map<String, byte[]> expected, Map<String, byte[]> actual) {
+        assertEquals(expected.keySet(), actual.keySet());
+        for (String path : expected.keySet()) {
+            assertArrayEquals(path, expected.get(path), actual.get(path));
+        }
+    }
+
+    /**
+     * Runs BundlerProcessor over the given sources and the android stubs, and returns generated files by relative path.
+     */
+    private Map<String, byte[]> generate(List<JavaFileObject> sources) throws Exception {
+        Compilation compilation = compile(sources, true);
+        assertTrue(compilation.diagnostics, compilation.success);
+
+        Map<String, byte[]> generated = new TreeMap<>();
+        collect(compilation.generatedDir, "", generated);
+        return generated;
+    }
+
+    /**
+     * Compiles the given sources, the android stubs and the generated classes, and returns a loader for them.
+     */
+    private ClassLoader load(List<JavaFileObject> sources) throws Exception {
+        Compilation compilation = compile(sources, false);
+        assertTrue(compilation.diagnostics, compilation.success);
+
+        return new URLClassLoader(new URL[] { compilation.classesDir.toURI().toURL() }, getClass().getClassLoader());
+    }
+
+    /**
+     * Runs BundlerProcessor over the given sources expecting it to fail, and returns the reported errors.
+     */
+    private String errorsOf(List<JavaFileObject> sources) throws Exception {
+        Compilation compilation = compile(sources, true);
+        assertFalse(compilation.success);
+        return compilation.diagnostics;
+    }
+
+    private Compilation compile(List<JavaFileObject> sources, boolean processOnly) throws Exception {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        StandardJavaFileManager fileManager = compiler.getStandardFileManager(diagnostics, null, null);
+
+        File generatedDir = temporaryFolder.newFolder();
+        File classesDir = temporaryFolder.newFolder();
+
+        List<JavaFileObject> compilationUnits = new ArrayList<>(sources);
+        compilationUnits.addAll(Arrays.asList(BUNDLE, PARCELABLE, INTENT, SPARSE_ARRAY));
+
+        List<String> options = new ArrayList<>(Arrays.asList(
+                "-classpath", System.getProperty("java.class.path"),
+                "-s", generatedDir.getPath(),
+                "-d", classesDir.getPath()
+        ));
+        if (processOnly) {
+            options.add("-proc:only");
+        }
+
+        JavaCompiler.CompilationTask task = compiler.getTask(null, fileManager, diagnostics, options, null, compilationUnits);
+        task.setProcessors(Collections.singletonList(new BundlerProcessor()));
+        boolean success = task.call();
+        fileManager.close();
+
+        return new Compilation(success, diagnostics.getDiagnostics().toString(), generatedDir, classesDir);
+    }
+
+    private static Object invoke(Class<?> type, String methodName, Object... args) throws Exception {
+        return invokeOn(type, null, methodName, args);
+    }
+
+    private static Object call(Object target, String methodName, Object... args) throws Exception {
+        return invokeOn(target.getClass(), target, methodName, args);
+    }
+
+    private static Object invokeOn(Class<?> type, Object target, String methodName, Object... args) throws Exception {
+        for (Method method : type.getMethods()) {
+            if (method.getName().equals(methodName) && isApplicable(method.getParameterTypes(), args)) {
+                return method.invoke(target, args);
+            }
+        }
+        throw new NoSuchMethodException(type.getName() + "." + methodName);
+    }
+
+    private static boolean isApplicable(Class<?>[] parameterTypes, Object[] args) {
+        if (parameterTypes.length != args.length) {
+            return false;
+        }
+        for (int i = 0; i < args.length; i++) {
+            Class<?> parameterType = parameterTypes[i];
+            if (parameterType == int.class) {
+                parameterType = Integer.class;
+            }
+            if (args[i] != null && !parameterType.isInstance(args[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Object fieldOf(Object model, String fieldName) throws Exception {
+        return model.getClass().getField(fieldName).get(model);
+    }
+
+    private static void collect(File dir, String prefix, Map<String, byte[]> generated) throws Exception {
+        for (File file : dir.listFiles()) {
+            if (file.isDirectory()) {
+                collect(file, prefix + file.getName() + "/", generated);
+            } else {
+                generated.put(prefix + file.getName(), Files.readAllBytes(file.toPath()));
+            }
+        }
+    }
+
+    private static JavaFileObject source(String qualifiedName, String... lines) {
+        final String content = joinLines(lines);
+        URI uri = URI.create("string:///" + qualifiedName.replace('.', '/') + JavaFileObject.Kind.SOURCE.extension);
+        return new SimpleJavaFileObject(uri, JavaFileObject.Kind.SOURCE) {
+            @Override
+            public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                return content;
+            }
+        };
+    }
+
+    private static class Compilation {
+        final boolean success;
+        final String diagnostics;
+        final File generatedDir;
+        final File classesDir;
+
+        Compilation(boolean success, String diagnostics, File generatedDir, File classesDir) {
+            this.success = success;
+            this.diagnostics = diagnostics;
+            this.generatedDir = generatedDir;
+            this.classesDir = classesDir;
+        }
+    }
+
+    /**
+     * Runs submitted tasks only when asked to.
+     */
+    private static class QueueExecutor implements Executor {
+        private final Queue<Runnable> tasks = new ArrayDeque<>();
+
+        @Override
+        public void execute(Runnable command) {
+            tasks.add(command);
+        }
+
+        public int runAll() {
+            int count = 0;
+            Runnable task;
+            while ((task = tasks.poll()) != null) {
+                task.run();
+                count++;
+            }
+            return count;
+        }
+    }
+
+    private static String joinLines(String... lines) {
+        StringBuilder builder = new StringBuilder();
+        for (String line : lines) {
+            builder.append(line).append('\n');
+        }
+        return builder.toString();
+    }
+}